@@ -0,0 +1,56 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/** Deterministic generated sources for the measurement programs. */
+class Corpus {
+    private Corpus() {}
+
+    /**
+     * Token-dense generated code: short declarations, arithmetic, string
+     * literals and small functions, about 28 tokens per line.
+     */
+    static ByteBuffer dense(int lines, long seed) {
+        Random random = new Random(seed);
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            source.append("var v").append(i % 997).append(" = ")
+                    .append(random.nextInt(100000)).append('.').append(random.nextInt(100))
+                    .append(" * (x").append(i % 31).append(" + \"s").append(i % 13).append("\"); ")
+                    .append("fun f").append(i % 71).append("(a, b) { return a < b and !nil; }\n");
+        }
+        return encode(source);
+    }
+
+    /**
+     * Mostly dense code, with long multi-line strings that cross parallel
+     * scan chunk boundaries, stray characters, and optionally a string left
+     * open at the end.
+     */
+    static ByteBuffer awkward(int lines, long seed, boolean unterminated) {
+        Random random = new Random(seed);
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            double roll = random.nextDouble();
+            if (roll < 0.01) {
+                source.append("var s = \"");
+                int length = random.nextInt(60000) + 1;
+                for (int j = 0; j < length; j++) source.append("line\n");
+                source.append("\";\n");
+            } else if (roll < 0.02) {
+                source.append("@ // stray character\n");
+            } else {
+                source.append("var v").append(i).append(" = ").append(i)
+                        .append(".5 + \"x\"; // \"quote in a comment\n");
+            }
+        }
+        if (unterminated) source.append("var z = \"open\nnever closed\n");
+        return encode(source);
+    }
+
+    private static ByteBuffer encode(StringBuilder source) {
+        return ByteBuffer.wrap(source.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,46 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the scanner's number fast path against Double.parseDouble, bit for
+ * bit, on random literals of 1-20 integer and 0-19 fraction digits, so both
+ * the fast path and the fallback are exercised.
+ */
+public class NumberParseCheck {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        Random random = new Random(7);
+        List<String> literals = new ArrayList<>(count);
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            StringBuilder literal = new StringBuilder();
+            int integerDigits = 1 + random.nextInt(20);
+            for (int d = 0; d < integerDigits; d++) literal.append((char) ('0' + random.nextInt(10)));
+            int fractionDigits = random.nextInt(20);
+            if (fractionDigits > 0 && random.nextBoolean()) {
+                literal.append('.');
+                for (int d = 0; d < fractionDigits; d++) literal.append((char) ('0' + random.nextInt(10)));
+            }
+            literals.add(literal.toString());
+            source.append(literal).append(' ');
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(source.toString().getBytes(StandardCharsets.UTF_8));
+        TokenBuffer tokens = new TokenBuffer(bytes);
+        new Scanner(bytes).scanTokens(tokens);
+
+        for (int i = 0; i < count; i++) {
+            double expected = Double.parseDouble(literals.get(i));
+            if (Double.doubleToLongBits(tokens.number(i)) != Double.doubleToLongBits(expected)) {
+                throw new AssertionError(literals.get(i) + " scanned as " + tokens.number(i)
+                        + ", expected " + expected);
+            }
+        }
+        System.out.printf("ok %,d literals match Double.parseDouble%n", count);
+    }
+}
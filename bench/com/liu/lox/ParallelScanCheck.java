@@ -0,0 +1,63 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that ParallelScanner produces exactly what the serial scanner does,
+ * including where multi-line strings cross chunk boundaries and when the
+ * source ends inside a string. Diagnostics go to stderr from both scans and
+ * should appear twice, in the same order.
+ */
+public class ParallelScanCheck {
+    public static void main(String[] args) {
+        ForkJoinPool pool = new ForkJoinPool(args.length > 0 ? Integer.parseInt(args[0]) : 16);
+
+        check("dense", Corpus.dense(200000, 1), pool);
+        check("awkward", Corpus.awkward(60000, 2, false), pool);
+        check("unterminated", Corpus.awkward(60000, 2, true), pool);
+
+        // A string that opens on the first line and never closes.
+        ByteBuffer dense = Corpus.dense(200000, 3);
+        ByteBuffer open = ByteBuffer.allocate(dense.remaining() + 6);
+        open.put("\"oops\n".getBytes()).put(removeQuotes(dense)).flip();
+        check("never-closed", open, pool);
+    }
+
+    private static void check(String name, ByteBuffer source, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        TokenBuffer parallel = ParallelScanner.scan(source, pool);
+        long parallelNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Token> serial = new Scanner(source.duplicate()).scanTokens();
+        long serialNanos = System.nanoTime() - start;
+
+        if (parallel.size() != serial.size()) {
+            throw new AssertionError(name + ": " + parallel.size() + " tokens, expected " + serial.size());
+        }
+        for (int i = 0; i < serial.size(); i++) {
+            Token expected = serial.get(i);
+            Token actual = parallel.token(i);
+            if (actual.type != expected.type || actual.start != expected.start
+                    || actual.length != expected.length || actual.line != expected.line
+                    || !String.valueOf(actual.value()).equals(String.valueOf(expected.value()))) {
+                throw new AssertionError(name + ": token " + i + " is " + actual + " on line "
+                        + actual.line + ", expected " + expected + " on line " + expected.line);
+            }
+        }
+
+        System.out.printf("ok %-13s %,d bytes  %,d tokens  parallel %d ms  serial %d ms%n",
+                name, source.remaining(), serial.size(), parallelNanos / 1000000, serialNanos / 1000000);
+    }
+
+    private static ByteBuffer removeQuotes(ByteBuffer source) {
+        ByteBuffer result = ByteBuffer.allocate(source.remaining());
+        for (int i = source.position(); i < source.limit(); i++) {
+            if (source.get(i) != '"') result.put(source.get(i));
+        }
+        result.flip();
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the retained heap of List<Token> against a trimmed TokenBuffer
+ * on the dense generated corpus. The source itself is allocated before the
+ * baseline and is not counted; literal values are, on both sides.
+ *
+ * Run with a heap large enough for both, e.g. -Xmx4g.
+ */
+public class TokenMemory {
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        ByteBuffer source = Corpus.dense(lines, 1);
+
+        long before = usedHeap();
+        List<Token> list = new Scanner(source.duplicate()).scanTokens();
+        long listBytes = usedHeap() - before;
+        int count = list.size();
+        list = null;
+
+        before = usedHeap();
+        TokenBuffer buffer = new TokenBuffer(source);
+        new Scanner(source.duplicate()).scanTokens(buffer);
+        buffer.trim();
+        long bufferBytes = usedHeap() - before;
+
+        System.out.printf(Locale.ROOT, "source       %,d bytes, %,d tokens%n", source.remaining(), count);
+        System.out.printf(Locale.ROOT, "List<Token>  %,d bytes  %.1f bytes/token%n",
+                listBytes, (double) listBytes / count);
+        System.out.printf(Locale.ROOT, "TokenBuffer  %,d bytes  %.1f bytes/token%n",
+                bufferBytes, (double) bufferBytes / buffer.size());
+
+        // Keep both alive until measured.
+        if (list != null || buffer.size() != count) throw new AssertionError();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
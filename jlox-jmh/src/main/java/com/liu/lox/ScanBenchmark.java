@@ -0,0 +1,82 @@
+package com.liu.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Scan stage throughput over the programs in bench/corpus, once per scan
+ * mode. Each program is repeated to TARGET_SIZE bytes so the parallel
+ * scanner has enough input to split. Scanning is the only stage Lox.run has
+ * so far; parse, resolve and interpret benchmarks belong beside this one
+ * once they exist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ScanBenchmark {
+    private static final int TARGET_SIZE = 4 << 20;
+
+    @Param({"binary_trees", "closures", "fib", "instantiation", "method_call", "string_concat"})
+    public String program;
+
+    private ByteBuffer source;
+
+    @Setup
+    public void load() throws IOException {
+        String corpus = System.getProperty("lox.corpus", "bench/corpus");
+        byte[] bytes = Files.readAllBytes(Paths.get(corpus, program + ".lox"));
+
+        int copies = Math.max(1, TARGET_SIZE / (bytes.length + 1));
+        source = ByteBuffer.allocate(copies * (bytes.length + 1));
+        for (int i = 0; i < copies; i++) {
+            source.put(bytes).put((byte) '\n');
+        }
+        source.flip();
+    }
+
+    @Benchmark
+    public List<Token> list() {
+        return new Scanner(source.duplicate()).scanTokens();
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        TokenStream tokens = new TokenStream(new Scanner(source.duplicate()));
+        while (tokens.hasNext()) {
+            blackhole.consume(tokens.next());
+        }
+    }
+
+    @Benchmark
+    public TokenBuffer buffer() {
+        ByteBuffer view = source.duplicate();
+        TokenBuffer tokens = new TokenBuffer(view);
+        new Scanner(view).scanTokens(tokens);
+        return tokens;
+    }
+
+    @Benchmark
+    public TokenBuffer parallel() {
+        return ParallelScanner.scan(source.duplicate());
+    }
+}
@@ -0,0 +1,195 @@
+package com.liu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many scripts in one JVM so they share its startup cost and warm JIT.
+ *
+ * Each script gets its own session. Its stdout and stderr are captured into
+ * one transcript that keeps their relative order, and replayed in argument
+ * order once the script finishes. A status line with the script's timing
+ * goes to stderr after its output.
+ */
+class Batch {
+    // Exit status for a script that failed inside the interpreter itself.
+    private static final int INTERNAL_ERROR = 70;
+
+    private static class Result {
+        final String path;
+        final int status;
+        final long nanos;
+        final Transcript transcript;
+
+        Result(String path, int status, long nanos, Transcript transcript) {
+            this.path = path;
+            this.status = status;
+            this.nanos = nanos;
+            this.transcript = transcript;
+        }
+    }
+
+    /**
+     * Records writes to a script's stdout and stderr as a sequence of
+     * segments, starting a new one whenever the stream being written changes.
+     */
+    private static class Transcript {
+        private final List<ByteArrayOutputStream> segments = new ArrayList<>();
+        private final List<Boolean> toErr = new ArrayList<>();
+
+        final OutputStream out = stream(false);
+        final OutputStream err = stream(true);
+
+        private OutputStream stream(boolean isErr) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[] {(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) {
+                    record(isErr, bytes, offset, length);
+                }
+            };
+        }
+
+        private synchronized void record(boolean isErr, byte[] bytes, int offset, int length) {
+            int last = segments.size() - 1;
+            if (last < 0 || toErr.get(last) != isErr) {
+                segments.add(new ByteArrayOutputStream());
+                toErr.add(isErr);
+                last++;
+            }
+            segments.get(last).write(bytes, offset, length);
+        }
+
+        synchronized void replay() throws IOException {
+            for (int i = 0; i < segments.size(); i++) {
+                PrintStream stream = toErr.get(i) ? System.err : System.out;
+                segments.get(i).writeTo(stream);
+                stream.flush();
+            }
+        }
+    }
+
+    private Batch() {}
+
+    /**
+     * Returns the process exit code: 0, 64 for bad arguments or nothing to
+     * run, or 65 if any script failed.
+     */
+    static int main(String[] args) throws IOException {
+        int jobs = 1;
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--jobs=")) {
+                try {
+                    jobs = Integer.parseInt(arg.substring("--jobs=".length()));
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs < 1) {
+                    Lox.usage();
+                    return 64;
+                }
+            } else if (arg.startsWith("@")) {
+                // A manifest lists one script per line.
+                for (String line : Files.readAllLines(Paths.get(arg.substring(1)), StandardCharsets.UTF_8)) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) paths.add(line);
+                }
+            } else {
+                paths.add(arg);
+            }
+        }
+
+        if (paths.isEmpty()) {
+            // Most likely a mistyped or empty manifest; do not pass silently.
+            System.err.println("No scripts to run.");
+            Lox.usage();
+            return 64;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        List<Future<Result>> results = new ArrayList<>();
+        for (String path : paths) {
+            results.add(executor.submit(() -> runScript(path)));
+        }
+
+        int failed = 0;
+        long total = 0;
+        try {
+            for (Future<Result> future : results) {
+                Result result = future.get();
+                result.transcript.replay();
+                System.err.printf("%s %8.2f ms  %s%n",
+                        result.status == 0 ? "ok  " : "FAIL", result.nanos / 1e6, result.path);
+                if (result.status != 0) failed++;
+                total += result.nanos;
+            }
+        } catch (ExecutionException e) {
+            // Only fatal VM errors escape runScript.
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IOException("Batch run aborted.", e.getCause());
+        } catch (InterruptedException e) {
+            throw new IOException("Batch run aborted.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        System.err.printf("%d scripts, %d failed, %.2f ms%n", paths.size(), failed, total / 1e6);
+        return failed == 0 ? 0 : 65;
+    }
+
+    private static Result runScript(String path) throws UnsupportedEncodingException {
+        Transcript transcript = new Transcript();
+        PrintStream err = new PrintStream(transcript.err, true, "UTF-8");
+        Lox.Session session = new Lox.Session(
+                new Output(transcript.out, Output.FlushPolicy.ON_EXIT,
+                        Output.DEFAULT_BUFFER_SIZE, Output.DEFAULT_FLUSH_SIZE), err);
+
+        long start = System.nanoTime();
+        int status = INTERNAL_ERROR;
+        String problem = null;
+        try {
+            status = Lox.runIsolated(Source.load(Paths.get(path)), session) ? 0 : 65;
+        } catch (IOException e) {
+            status = 66;
+            problem = "Could not read " + path + ": " + e.getMessage();
+        } catch (RuntimeException | Error e) {
+            // One broken script must not take the rest of the batch down, but
+            // running out of memory or a broken VM affects every job.
+            if (e instanceof VirtualMachineError && !(e instanceof StackOverflowError)) throw e;
+            problem = "Internal error running " + path + ": " + e;
+        } finally {
+            // Keep what the script printed before it failed; that is what
+            // someone debugging it needs. A failing flush must not mask the
+            // original error.
+            try {
+                session.out.flush();
+            } catch (RuntimeException e) {
+                if (problem == null) {
+                    status = INTERNAL_ERROR;
+                    problem = "Could not capture output of " + path + ": " + e;
+                }
+            }
+        }
+        if (problem != null) err.println(problem);
+        long nanos = System.nanoTime() - start;
+
+        return new Result(path, status, nanos, transcript);
+    }
+}
@@ -3,47 +3,124 @@ package com.liu.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.Arrays;
 
 public class Lox {
 
+    /**
+     * Where one script's output and errors go. Each thread has its own, so
+     * batch mode can run several scripts at once without them mixing.
+     */
+    static class Session {
+        final Output out;
+        final PrintStream err;
+        boolean hadError = false;
+
+        Session(Output out, PrintStream err) {
+            this.out = out;
+            this.err = err;
+        }
+    }
+
+    private static final ThreadLocal<Session> session = ThreadLocal.withInitial(
+            () -> new Session(Output.stdout(Output.FlushPolicy.ON_EXIT), System.err));
+
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
+        String badConfiguration = Output.configurationError();
+        if (badConfiguration != null) {
+            System.err.println(badConfiguration);
+            usage();
+            System.exit(64);
+        }
+
+        if (args.length >= 1 && args[0].equals("--batch")) {
+            System.exit(Batch.main(Arrays.copyOfRange(args, 1, args.length)));
+        } else if (args.length > 1) {
+            usage();
         } else if (args.length == 1) {
             runFile(args[0]);
         } else {
-//            runPrompt();
+            runPrompt();
         }
+        session.get().out.flush();
+    }
+
+    static void usage() {
+        System.out.println("Usage: jlox [script]");
+        System.out.println("       jlox --batch [--jobs=N] script|@manifest...");
     }
 
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        for (byte x : bytes) {
-            System.out.println(x);
-        }
-//        run(new String(bytes, Charset.defaultCharset()));
-    }
-
-//    private static void runPrompt() throws IOException {
-//        InputStreamReader input = new InputStreamReader(System.in);
-//        BufferedReader reader = new BufferedReader(input);
-//
-//        for (;;) {
-//            System.out.print("> ");
-//            run(reader.readLine());
-//        }
-//    }
-
-//    private static void run(String source) {
-//        Scanner scanner = new Scanner(source);
-//        List<Token> tokens = scanner.scanTokens();
-//
-//        for (Token token : tokens) {
-//            System.out.println(token);
-//        }
-//    }
+        run(Source.load(Paths.get(path)));
+
+        // Indicate an error in the exit code.
+        if (session.get().hadError) {
+            session.get().out.flush();
+            System.exit(65);
+        }
+    }
+
+    private static void runPrompt() throws IOException {
+        InputStreamReader input = new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        BufferedReader reader = new BufferedReader(input);
+        session.set(new Session(Output.stdout(Output.FlushPolicy.ON_NEWLINE), System.err));
+        Output out = session.get().out;
+
+        for (;;) {
+            out.print("> ");
+            out.flush();
+            String line = reader.readLine();
+            if (line == null) break;
+            run(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            session.get().hadError = false;
+        }
+    }
+
+    /**
+     * Runs a script against a fresh session and reports whether it had an
+     * error. The caller owns the session's output and flushes it.
+     */
+    static boolean runIsolated(ByteBuffer source, Session fresh) {
+        session.set(fresh);
+        try {
+            run(source);
+            return !fresh.hadError;
+        } finally {
+            session.remove();
+        }
+    }
+
+    private static void run(ByteBuffer source) {
+        Output out = session.get().out;
+
+        if (ParallelScanner.worthwhile(source)) {
+            TokenBuffer tokens = ParallelScanner.scan(source);
+            for (int i = 0; i < tokens.size(); i++) {
+                out.println(tokens.token(i));
+            }
+            return;
+        }
+
+        TokenStream tokens = new TokenStream(new Scanner(source));
+
+        while (tokens.hasNext()) {
+            out.println(tokens.next());
+        }
+    }
+
+    static void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    private static void report(int line, String where, String message) {
+        Session current = session.get();
+        // Keep diagnostics ordered relative to buffered program output.
+        current.out.flush();
+        current.err.println("[line " + line + "] Error" + where + ": " + message);
+        current.hadError = true;
+    }
 }
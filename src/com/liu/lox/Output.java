@@ -0,0 +1,144 @@
+package com.liu.lox;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered sink for everything the interpreter prints.
+ *
+ * Text is encoded straight into a byte buffer of the configured size, which
+ * goes to the raw stdout file descriptor in one write when it fills or is
+ * flushed. This avoids System.out, which takes a lock and may flush on every
+ * call.
+ */
+class Output {
+    enum FlushPolicy {
+        // Only write when the buffer fills up or the sink is flushed at exit.
+        ON_EXIT,
+        // Flush after every line, for interactive sessions.
+        ON_NEWLINE,
+        // Flush whenever flushSize bytes are pending.
+        BY_SIZE
+    }
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    static final int DEFAULT_FLUSH_SIZE = 1 << 13;
+    // Room for the longest UTF-8 encoding of a code point, so a single
+    // character always fits once the buffer has been drained.
+    static final int MIN_BUFFER_SIZE = 4;
+
+    private final OutputStream out;
+    private final FlushPolicy policy;
+    private final ByteBuffer buffer;
+    private final int flushSize;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    Output(OutputStream out, FlushPolicy policy, int bufferSize, int flushSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Output buffer must hold at least " + MIN_BUFFER_SIZE + " bytes.");
+        }
+        if (flushSize < 1) {
+            throw new IllegalArgumentException("Flush size must be positive.");
+        }
+        this.out = out;
+        this.policy = policy;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.flushSize = Math.min(flushSize, bufferSize);
+    }
+
+    /**
+     * Checks the lox.flush, lox.buffer and lox.flushSize properties, returning
+     * a message describing the first bad one, or null if they are all usable.
+     */
+    static String configurationError() {
+        String policy = System.getProperty("lox.flush");
+        if (policy != null && policyNamed(policy) == null) {
+            return "lox.flush must be one of on_exit, on_newline or by_size, not '" + policy + "'.";
+        }
+        if (sizeProperty("lox.buffer", DEFAULT_BUFFER_SIZE) < MIN_BUFFER_SIZE) {
+            return "lox.buffer must be an integer of at least " + MIN_BUFFER_SIZE + ".";
+        }
+        if (sizeProperty("lox.flushSize", DEFAULT_FLUSH_SIZE) < 1) {
+            return "lox.flushSize must be a positive integer.";
+        }
+        return null;
+    }
+
+    /** Expects the properties to have passed {@link #configurationError()}. */
+    static Output stdout(FlushPolicy policy) {
+        String override = System.getProperty("lox.flush");
+        if (override != null) policy = policyNamed(override);
+        return new Output(new FileOutputStream(FileDescriptor.out), policy,
+                sizeProperty("lox.buffer", DEFAULT_BUFFER_SIZE),
+                sizeProperty("lox.flushSize", DEFAULT_FLUSH_SIZE));
+    }
+
+    private static FlushPolicy policyNamed(String name) {
+        for (FlushPolicy policy : FlushPolicy.values()) {
+            if (policy.name().equalsIgnoreCase(name)) return policy;
+        }
+        return null;
+    }
+
+    // Returns -1 for a value that is not an integer.
+    private static int sizeProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    void print(String text) {
+        CharBuffer chars = CharBuffer.wrap(text);
+        for (;;) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        encoder.reset();
+
+        if (policy == FlushPolicy.BY_SIZE && buffer.position() >= flushSize) flush();
+    }
+
+    void println(Object value) {
+        print(String.valueOf(value));
+        print("\n");
+        if (policy == FlushPolicy.ON_NEWLINE) flush();
+    }
+
+    void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain() {
+        if (buffer.position() == 0) return;
+        try {
+            out.write(buffer.array(), 0, buffer.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,157 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.liu.lox.TokenType.EOF;
+import static com.liu.lox.TokenType.STRING;
+
+/**
+ * Scans large sources on a ForkJoinPool.
+ *
+ * The source is cut into chunks just after a newline. Each chunk is scanned
+ * on the assumption that it starts outside a string, which holds unless the
+ * previous chunk ended inside one. That case shows up as an unterminated
+ * string when stitching: the string body is then finished serially, and the
+ * chunk it closes in is rescanned from just after the closing quote.
+ */
+class ParallelScanner {
+    // Below this the fork/join overhead outweighs the win.
+    static final int THRESHOLD = 1 << 20;
+    private static final int MIN_CHUNK = 1 << 18;
+
+    private static class Chunk {
+        final TokenBuffer tokens;
+        final Scanner scanner;
+        // Each chunk interns into its own table so workers never contend on
+        // the global one; ids are remapped when the chunk is stitched in.
+        final SymbolTable symbols = new SymbolTable();
+        final int startLine;
+        final int end;
+
+        Chunk(ByteBuffer source, int from, int to, int startLine) {
+            ByteBuffer view = source.duplicate();
+            view.limit(to).position(from);
+            this.tokens = new TokenBuffer(source, Math.max(16, (to - from) / 6));
+            this.scanner = new Scanner(view, startLine, symbols);
+            this.startLine = startLine;
+            this.end = to;
+            scanner.deferErrors();
+        }
+
+        Chunk scan() {
+            scanner.scanTokens(tokens);
+            return this;
+        }
+
+        int endLine() {
+            // The trailing EOF token carries the line the chunk ended on.
+            return tokens.line(tokens.size() - 1);
+        }
+    }
+
+    private ParallelScanner() {}
+
+    /** Whether a parallel scan is likely to beat the serial scanner. */
+    static boolean worthwhile(ByteBuffer source) {
+        return source.remaining() >= THRESHOLD
+                && ForkJoinPool.commonPool().getParallelism() > 1;
+    }
+
+    static TokenBuffer scan(ByteBuffer source) {
+        return scan(source, ForkJoinPool.commonPool());
+    }
+
+    static TokenBuffer scan(ByteBuffer source, ForkJoinPool pool) {
+        int[] bounds = split(source, pool.getParallelism());
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i < bounds.length - 1; i++) {
+            Chunk chunk = new Chunk(source, bounds[i], bounds[i + 1], 1);
+            tasks.add(pool.submit(chunk::scan));
+        }
+
+        // Wait for every chunk so the result can be sized exactly. Stitching
+        // is sequential anyway, and rescans rarely change the count much.
+        int capacity = 0;
+        for (ForkJoinTask<Chunk> task : tasks) capacity += task.join().tokens.size();
+
+        TokenBuffer result = new TokenBuffer(source, capacity);
+        int line = 1;
+        int i = 0;
+        Chunk chunk = tasks.get(0).join();
+        for (;;) {
+            int shift = line - chunk.startLine;
+            for (Scanner.Diagnostic error : chunk.scanner.deferredErrors()) {
+                Lox.error(error.line + shift, error.message);
+            }
+            // Everything but the chunk's own EOF token.
+            result.append(chunk.tokens, chunk.tokens.size() - 1, shift,
+                    chunk.symbols.remapInto(SymbolTable.GLOBAL));
+            int endLine = chunk.endLine() + shift;
+
+            int open = chunk.scanner.unterminatedStart();
+            if (open >= 0) {
+                // Finish the string serially from where the chunk stopped.
+                // Inside a string only newlines and the closing quote matter.
+                int close = chunk.end;
+                while (close < source.limit() && source.get(close) != '"') {
+                    if (source.get(close) == '\n') endLine++;
+                    close++;
+                }
+
+                if (close == source.limit()) {
+                    Lox.error(endLine, "Unterminated string.");
+                    result.add(EOF, source.limit(), 0, endLine, null);
+                    result.trim();
+                    return result;
+                }
+
+                result.add(STRING, open, close + 1 - open, endLine,
+                        Token.decode(source, open + 1, close - open - 1));
+
+                // The chunk the string closes in was scanned as if it started
+                // outside a string, so rescan it from just past the quote.
+                while (bounds[i + 1] <= close) i++;
+                line = endLine;
+                chunk = new Chunk(source, close + 1, bounds[i + 1], line).scan();
+                continue;
+            }
+
+            if (i == tasks.size() - 1) {
+                result.add(EOF, source.limit(), 0, endLine, null);
+                result.trim();
+                return result;
+            }
+            line = endLine;
+            i++;
+            chunk = tasks.get(i).join();
+        }
+    }
+
+    // Chunk boundaries, each one just past a newline.
+    private static int[] split(ByteBuffer source, int parallelism) {
+        int from = source.position();
+        int to = source.limit();
+        int chunkSize = Math.max(MIN_CHUNK, (to - from) / (parallelism * 4));
+
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(from);
+        int boundary = from;
+        while (to - boundary > chunkSize) {
+            int i = boundary + chunkSize;
+            while (i < to && source.get(i) != '\n') i++;
+            if (i >= to - 1) break;
+            boundary = i + 1;
+            bounds.add(boundary);
+        }
+        bounds.add(to);
+
+        int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+}
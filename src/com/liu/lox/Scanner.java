@@ -0,0 +1,426 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.liu.lox.TokenType.*;
+
+/**
+ * Scans UTF-8 source bytes directly. Everything outside string literals and
+ * identifiers is ASCII, so multi-byte sequences are only ever decoded when a
+ * lexeme or string value is actually needed. Identifiers may contain
+ * non-ASCII letters, which are validated in place without decoding.
+ */
+class Scanner {
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private final ByteBuffer source;
+    private final SymbolTable symbols;
+    private final int end;
+    private int start;
+    private int current;
+    private int line;
+    private Object literal;
+    private double number;
+    private int symbol;
+
+    // Set when errors are collected for later instead of being reported.
+    private List<Diagnostic> deferred;
+    private int unterminatedStart = -1;
+    private int unterminatedLine;
+
+    static class Diagnostic {
+        final int line;
+        final String message;
+
+        Diagnostic(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    Scanner(ByteBuffer source) {
+        this(source, 1);
+    }
+
+    Scanner(ByteBuffer source, int line) {
+        this(source, line, SymbolTable.GLOBAL);
+    }
+
+    Scanner(ByteBuffer source, int line, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+        this.start = source.position();
+        this.current = source.position();
+        this.end = source.limit();
+        this.line = line;
+    }
+
+    /**
+     * Collects errors instead of reporting them, for scans whose result may
+     * be thrown away. A string still open at the end of the source is not an
+     * error in this mode; see {@link #unterminatedStart()}.
+     */
+    void deferErrors() {
+        deferred = new ArrayList<>();
+    }
+
+    List<Diagnostic> deferredErrors() {
+        return deferred;
+    }
+
+    /** Offset of the opening quote of a string the source ended inside, or -1. */
+    int unterminatedStart() {
+        return unterminatedStart;
+    }
+
+    int unterminatedLine() {
+        return unterminatedLine;
+    }
+
+    List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != EOF);
+        return tokens;
+    }
+
+    /**
+     * Scans just far enough to produce the next token. Once the source is
+     * exhausted every call returns an EOF token.
+     */
+    Token nextToken() {
+        TokenType type = scan();
+        return new Token(type, source, start, current - start, literal, number, symbol, line);
+    }
+
+    /**
+     * Scans the whole source into a compact buffer without allocating a
+     * Token per lexeme.
+     */
+    void scanTokens(TokenBuffer tokens) {
+        TokenType type;
+        do {
+            type = scan();
+            if (type == NUMBER) {
+                tokens.addNumber(start, current - start, line, number);
+            } else {
+                tokens.add(type, start, current - start, line, literal, symbol);
+            }
+        } while (type != EOF);
+    }
+
+    // Leaves the lexeme span in start/current and its value in literal or number.
+    private TokenType scan() {
+        while (!isAtEnd()) {
+            // We are at the beginning of the next lexeme.
+            start = current;
+            literal = null;
+            number = 0;
+            symbol = -1;
+            TokenType type = scanToken();
+            if (type != null) return type;
+        }
+
+        start = current;
+        literal = null;
+        number = 0;
+        symbol = -1;
+        return EOF;
+    }
+
+    // Returns null for input that does not produce a token, such as
+    // whitespace, comments and errors.
+    private TokenType scanToken() {
+        byte c = advance();
+        switch (c) {
+            case '(': return LEFT_PAREN;
+            case ')': return RIGHT_PAREN;
+            case '{': return LEFT_BRACE;
+            case '}': return RIGHT_BRACE;
+            case ',': return COMMA;
+            case '.': return DOT;
+            case '-': return MINUS;
+            case '+': return PLUS;
+            case ';': return SEMICOLON;
+            case '*': return STAR;
+            case '!': return match('=') ? BANG_EQUAL : BANG;
+            case '=': return match('=') ? EQUAL_EQUAL : EQUAL;
+            case '<': return match('=') ? LESS_EQUAL : LESS;
+            case '>': return match('=') ? GREATER_EQUAL : GREATER;
+            case '/':
+                if (match('/')) {
+                    // A comment goes until the end of the line.
+                    while (peek() != '\n' && !isAtEnd()) advance();
+                } else {
+                    return SLASH;
+                }
+                break;
+
+            case ' ':
+            case '\r':
+            case '\t':
+                // Ignore whitespace.
+                break;
+
+            case '\n':
+                line++;
+                break;
+
+            case '"': return string();
+
+            default:
+                if (isDigit(c)) {
+                    return number();
+                } else if (isAlpha(c)) {
+                    return identifier();
+                } else if (c < 0) {
+                    return nonAscii();
+                } else {
+                    error(line, "Unexpected character.");
+                }
+                break;
+        }
+        return null;
+    }
+
+    // A multi-byte UTF-8 sequence can only start an identifier, and only if it
+    // is well formed and encodes a letter.
+    private TokenType nonAscii() {
+        int length = utf8Length(start);
+        if (length > 0 && Character.isLetter(codePoint(start, length))) {
+            current = start + length;
+            return identifier();
+        }
+
+        // Skip the whole sequence so it is reported once.
+        if (length > 0) current = start + length;
+        error(line, "Unexpected character.");
+        return null;
+    }
+
+    private TokenType identifier() {
+        for (;;) {
+            byte c = peek();
+            if (isAlphaNumeric(c)) {
+                advance();
+            } else if (c < 0) {
+                int length = utf8Length(current);
+                if (length == 0 || !Character.isLetterOrDigit(codePoint(current, length))) break;
+                current += length;
+            } else {
+                break;
+            }
+        }
+
+        TokenType type = identifierType();
+        if (type == IDENTIFIER) {
+            symbol = symbols.intern(source, start, current - start);
+        }
+        return type;
+    }
+
+    // Recognizes keywords with a hand-rolled trie over the raw bytes, so no
+    // lexeme is decoded or hashed just to find out it is a plain identifier.
+    private TokenType identifierType() {
+        switch (source.get(start)) {
+            case 'a': return checkKeyword(1, "nd", AND);
+            case 'c': return checkKeyword(1, "lass", CLASS);
+            case 'e': return checkKeyword(1, "lse", ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (source.get(start + 1)) {
+                        case 'a': return checkKeyword(2, "lse", FALSE);
+                        case 'o': return checkKeyword(2, "r", FOR);
+                        case 'u': return checkKeyword(2, "n", FUN);
+                    }
+                }
+                break;
+            case 'i': return checkKeyword(1, "f", IF);
+            case 'n': return checkKeyword(1, "il", NIL);
+            case 'o': return checkKeyword(1, "r", OR);
+            case 'p': return checkKeyword(1, "rint", PRINT);
+            case 'r': return checkKeyword(1, "eturn", RETURN);
+            case 's': return checkKeyword(1, "uper", SUPER);
+            case 't':
+                if (current - start > 1) {
+                    switch (source.get(start + 1)) {
+                        case 'h': return checkKeyword(2, "is", THIS);
+                        case 'r': return checkKeyword(2, "ue", TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword(1, "ar", VAR);
+            case 'w': return checkKeyword(1, "hile", WHILE);
+        }
+
+        return IDENTIFIER;
+    }
+
+    private TokenType checkKeyword(int offset, String rest, TokenType type) {
+        if (current - start != offset + rest.length()) return IDENTIFIER;
+
+        for (int i = 0; i < rest.length(); i++) {
+            if (source.get(start + offset + i) != rest.charAt(i)) return IDENTIFIER;
+        }
+        return type;
+    }
+
+    private TokenType number() {
+        // Accumulate the digits as an integer mantissa while scanning.
+        long mantissa = source.get(start) - '0';
+        int digits = 1;
+        int fraction = 0;
+
+        while (isDigit(peek())) {
+            mantissa = mantissa * 10 + (advance() - '0');
+            digits++;
+        }
+
+        // Look for a fractional part.
+        if (peek() == '.' && isDigit(peekNext())) {
+            // Consume the "."
+            advance();
+
+            while (isDigit(peek())) {
+                mantissa = mantissa * 10 + (advance() - '0');
+                digits++;
+                fraction++;
+            }
+        }
+
+        // Up to 15 digits the mantissa and the power of ten are both exact
+        // doubles, so one division is correctly rounded. Anything longer
+        // could overflow or round twice and takes the exact slow path.
+        if (digits <= 15) {
+            number = fraction == 0 ? mantissa : mantissa / POWERS_OF_TEN[fraction];
+        } else {
+            number = Double.parseDouble(Token.decode(source, start, current - start));
+        }
+        return NUMBER;
+    }
+
+    private TokenType string() {
+        int openLine = line;
+        while (peek() != '"' && !isAtEnd()) {
+            if (peek() == '\n') line++;
+            advance();
+        }
+
+        // Unterminated string.
+        if (isAtEnd()) {
+            if (deferred != null) {
+                unterminatedStart = start;
+                unterminatedLine = openLine;
+            } else {
+                Lox.error(line, "Unterminated string.");
+            }
+            return null;
+        }
+
+        // The closing ".
+        advance();
+
+        // Trim the surrounding quotes.
+        return token(STRING, Token.decode(source, start + 1, current - start - 2));
+    }
+
+    private void error(int line, String message) {
+        if (deferred != null) {
+            deferred.add(new Diagnostic(line, message));
+        } else {
+            Lox.error(line, message);
+        }
+    }
+
+    private boolean match(char expected) {
+        if (isAtEnd()) return false;
+        if (source.get(current) != expected) return false;
+
+        current++;
+        return true;
+    }
+
+    private byte peek() {
+        if (isAtEnd()) return '\0';
+        return source.get(current);
+    }
+
+    private byte peekNext() {
+        if (current + 1 >= end) return '\0';
+        return source.get(current + 1);
+    }
+
+    private boolean isAlpha(byte c) {
+        return (c >= 'a' && c <= 'z') ||
+               (c >= 'A' && c <= 'Z') ||
+                c == '_';
+    }
+
+    // Length of the well-formed UTF-8 sequence at offset, or 0 if the bytes
+    // there are not one. Overlong forms, surrogates and code points past
+    // U+10FFFF are rejected, following the Unicode well-formedness table.
+    private int utf8Length(int offset) {
+        int lead = source.get(offset) & 0xff;
+        int length;
+        int low = 0x80;
+        int high = 0xbf;
+        if (lead >= 0xc2 && lead <= 0xdf) {
+            length = 2;
+        } else if (lead >= 0xe0 && lead <= 0xef) {
+            length = 3;
+            if (lead == 0xe0) low = 0xa0;
+            if (lead == 0xed) high = 0x9f;
+        } else if (lead >= 0xf0 && lead <= 0xf4) {
+            length = 4;
+            if (lead == 0xf0) low = 0x90;
+            if (lead == 0xf4) high = 0x8f;
+        } else {
+            return 0;
+        }
+
+        if (offset + length > end) return 0;
+        int second = source.get(offset + 1) & 0xff;
+        if (second < low || second > high) return 0;
+        for (int i = 2; i < length; i++) {
+            int next = source.get(offset + i) & 0xff;
+            if (next < 0x80 || next > 0xbf) return 0;
+        }
+        return length;
+    }
+
+    private int codePoint(int offset, int length) {
+        int codePoint = source.get(offset) & (0xff >> (length + 1));
+        for (int i = 1; i < length; i++) {
+            codePoint = (codePoint << 6) | (source.get(offset + i) & 0x3f);
+        }
+        return codePoint;
+    }
+
+    private boolean isAlphaNumeric(byte c) {
+        return isAlpha(c) || isDigit(c);
+    }
+
+    private boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isAtEnd() {
+        return current >= end;
+    }
+
+    private byte advance() {
+        return source.get(current++);
+    }
+
+    private TokenType token(TokenType type, Object literal) {
+        this.literal = literal;
+        return type;
+    }
+}
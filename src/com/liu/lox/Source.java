@@ -0,0 +1,57 @@
+package com.liu.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads Lox source files.
+ *
+ * Large regular files are memory-mapped and handed out as a read-only view,
+ * so the scanner reads straight from the page cache without a heap copy.
+ * Everything else is read into a heap buffer: pipes and other special files
+ * have no size to map, and for small scripts a mapping, which is only
+ * released when the GC gets to it, costs more than the copy it saves.
+ */
+class Source {
+    // Below this a plain read is cheaper than setting up a mapping.
+    static final int MAP_THRESHOLD = 1 << 20;
+
+    private Source() {}
+
+    static ByteBuffer load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (!Files.isRegularFile(path)) return readAll(channel, 1 << 13);
+
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file too large: " + path);
+            }
+            if (size < MAP_THRESHOLD) return readAll(channel, (int) size + 1);
+
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+        }
+    }
+
+    private static ByteBuffer readAll(FileChannel channel, int capacity) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(1, capacity));
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                if (buffer.capacity() == Integer.MAX_VALUE) {
+                    throw new IOException("Source too large.");
+                }
+                int grown = (int) Math.min(Integer.MAX_VALUE, buffer.capacity() * 2L);
+                ByteBuffer bigger = ByteBuffer.allocate(grown);
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
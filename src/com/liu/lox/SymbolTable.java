@@ -0,0 +1,110 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Interns identifier names into dense int ids.
+ *
+ * Lookups hash the raw UTF-8 span in the source, so an identifier that has
+ * been seen before costs no allocation. Later stages can key environments and
+ * fields on the id instead of hashing strings again.
+ *
+ * Methods are synchronized. Scanners that run concurrently should each intern
+ * into a private table and merge it with {@link #remapInto} afterwards.
+ */
+class SymbolTable {
+    static final SymbolTable GLOBAL = new SymbolTable();
+
+    // Open-addressed table of id + 1, with 0 marking an empty slot.
+    private int[] slots = new int[256];
+    private int[] hashes = new int[128];
+    private byte[][] names = new byte[128][];
+    private String[] strings = new String[128];
+    private int count = 0;
+
+    synchronized int intern(ByteBuffer source, int start, int length) {
+        int hash = hash(source, start, length);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) break;
+            if (hashes[id] == hash && matches(names[id], source, start, length)) return id;
+        }
+
+        int id = count++;
+        if (id == names.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+            names = Arrays.copyOf(names, id * 2);
+            strings = Arrays.copyOf(strings, id * 2);
+        }
+        byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) name[i] = source.get(start + i);
+        hashes[id] = hash;
+        names[id] = name;
+
+        // Keep the load factor under one half.
+        if (count * 2 > slots.length) {
+            rehash();
+        } else {
+            insert(slots, id);
+        }
+        return id;
+    }
+
+    synchronized String name(int id) {
+        String name = strings[id];
+        if (name == null) {
+            name = Token.decode(ByteBuffer.wrap(names[id]), 0, names[id].length);
+            strings[id] = name;
+        }
+        return name;
+    }
+
+    /**
+     * Interns every name of this table into {@code target} and returns the
+     * id each one got there, indexed by its id here.
+     */
+    synchronized int[] remapInto(SymbolTable target) {
+        int[] map = new int[count];
+        for (int id = 0; id < count; id++) {
+            map[id] = target.intern(ByteBuffer.wrap(names[id]), 0, names[id].length);
+        }
+        return map;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    private void rehash() {
+        int[] grown = new int[slots.length * 2];
+        for (int id = 0; id < count; id++) insert(grown, id);
+        slots = grown;
+    }
+
+    private void insert(int[] table, int id) {
+        int mask = table.length - 1;
+        int i = hashes[id] & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = id + 1;
+    }
+
+    // FNV-1a.
+    private static int hash(ByteBuffer source, int start, int length) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            hash ^= source.get(start + i) & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    private static boolean matches(byte[] name, ByteBuffer source, int start, int length) {
+        if (name.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (name[i] != source.get(start + i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,52 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A lexeme is kept as an (offset, length) span into the UTF-8 source and
+ * only decoded when somebody asks for its text.
+ */
+class Token {
+    final TokenType type;
+    final ByteBuffer source;
+    final int start;
+    final int length;
+    // The value of a STRING token. NUMBER values are kept unboxed in number.
+    final Object literal;
+    final double number;
+    // Interned id for identifiers, -1 for everything else.
+    final int symbol;
+    final int line;
+
+    Token(TokenType type, ByteBuffer source, int start, int length, Object literal,
+          double number, int symbol, int line) {
+        this.type = type;
+        this.source = source;
+        this.start = start;
+        this.length = length;
+        this.literal = literal;
+        this.number = number;
+        this.symbol = symbol;
+        this.line = line;
+    }
+
+    String lexeme() {
+        return decode(source, start, length);
+    }
+
+    /** The literal value, boxing it if this is a number. */
+    Object value() {
+        return type == TokenType.NUMBER ? (Object) number : literal;
+    }
+
+    public String toString() {
+        return type + " " + lexeme() + " " + value();
+    }
+
+    static String decode(ByteBuffer source, int start, int length) {
+        ByteBuffer span = source.duplicate();
+        span.limit(start + length).position(start);
+        return StandardCharsets.UTF_8.decode(span).toString();
+    }
+}
@@ -0,0 +1,177 @@
+package com.liu.lox;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays token storage. Each token is a handful of primitive array
+ * slots instead of a Token object; literal values live in a sparse side table
+ * since only NUMBER and STRING tokens have one.
+ *
+ * Parsers address tokens by index and read fields through the accessors, so
+ * nothing is allocated per token.
+ */
+class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    final ByteBuffer source;
+
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] symbols;
+    private int size = 0;
+
+    // Token indices with a literal, in ascending order, and their values.
+    // Numbers go in the double column so they are never boxed.
+    private int[] literalTokens;
+    private Object[] literalValues;
+    private double[] literalNumbers;
+    private int literalCount = 0;
+
+    TokenBuffer(ByteBuffer source) {
+        // A rough guess at bytes per token; the arrays grow if it is off.
+        this(source, Math.max(16, source.remaining() / 6));
+    }
+
+    TokenBuffer(ByteBuffer source, int capacity) {
+        this.source = source;
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.symbols = new int[capacity];
+        this.literalTokens = new int[16];
+        this.literalValues = new Object[16];
+        this.literalNumbers = new double[16];
+    }
+
+    void add(TokenType type, int start, int length, int line, Object literal) {
+        add(type, start, length, line, literal, -1);
+    }
+
+    void add(TokenType type, int start, int length, int line, Object literal, int symbol) {
+        if (size == types.length) grow();
+
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        symbols[size] = symbol;
+
+        if (literal != null) addLiteral(size, literal, 0);
+
+        size++;
+    }
+
+    void addNumber(int start, int length, int line, double number) {
+        add(TokenType.NUMBER, start, length, line, null, -1);
+        addLiteral(size - 1, null, number);
+    }
+
+    /**
+     * Copies the first {@code count} tokens of another buffer over the same
+     * source onto the end of this one, shifting their line numbers and
+     * translating symbol ids through {@code symbolMap}.
+     */
+    void append(TokenBuffer other, int count, int lineShift, int[] symbolMap) {
+        while (size + count > types.length) grow();
+
+        System.arraycopy(other.types, 0, types, size, count);
+        System.arraycopy(other.starts, 0, starts, size, count);
+        System.arraycopy(other.lengths, 0, lengths, size, count);
+        for (int i = 0; i < count; i++) {
+            lines[size + i] = other.lines[i] + lineShift;
+            int symbol = other.symbols[i];
+            symbols[size + i] = symbol < 0 ? symbol : symbolMap[symbol];
+        }
+
+        for (int i = 0; i < other.literalCount && other.literalTokens[i] < count; i++) {
+            addLiteral(size + other.literalTokens[i], other.literalValues[i],
+                    other.literalNumbers[i]);
+        }
+
+        size += count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int length(int index) {
+        return lengths[index];
+    }
+
+    int line(int index) {
+        return lines[index];
+    }
+
+    int symbol(int index) {
+        return symbols[index];
+    }
+
+    Object literal(int index) {
+        int slot = Arrays.binarySearch(literalTokens, 0, literalCount, index);
+        return slot < 0 ? null : literalValues[slot];
+    }
+
+    double number(int index) {
+        int slot = Arrays.binarySearch(literalTokens, 0, literalCount, index);
+        return slot < 0 ? 0 : literalNumbers[slot];
+    }
+
+    String lexeme(int index) {
+        return Token.decode(source, starts[index], lengths[index]);
+    }
+
+    /** Materializes a single token, for diagnostics and printing. */
+    Token token(int index) {
+        return new Token(type(index), source, starts[index], lengths[index],
+                literal(index), number(index), symbols[index], lines[index]);
+    }
+
+    private void addLiteral(int index, Object value, double number) {
+        if (literalCount == literalTokens.length) {
+            int capacity = Math.max(16, literalCount * 2);
+            literalTokens = Arrays.copyOf(literalTokens, capacity);
+            literalValues = Arrays.copyOf(literalValues, capacity);
+            literalNumbers = Arrays.copyOf(literalNumbers, capacity);
+        }
+        literalTokens[literalCount] = index;
+        literalValues[literalCount] = value;
+        literalNumbers[literalCount] = number;
+        literalCount++;
+    }
+
+    /**
+     * Drops the spare capacity left by growth and by the initial guess. Worth
+     * calling once scanning is done if the buffer is going to be kept.
+     */
+    void trim() {
+        resize(size);
+        literalTokens = Arrays.copyOf(literalTokens, literalCount);
+        literalValues = Arrays.copyOf(literalValues, literalCount);
+        literalNumbers = Arrays.copyOf(literalNumbers, literalCount);
+    }
+
+    private void grow() {
+        resize(Math.max(16, types.length + (types.length >> 1)));
+    }
+
+    private void resize(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+    }
+}
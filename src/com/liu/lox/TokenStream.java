@@ -0,0 +1,69 @@
+package com.liu.lox;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls tokens from a {@link Scanner} one at a time, keeping only a small
+ * ring buffer of lookahead. Memory use stays constant however large the
+ * source is, and the consumer starts working before scanning has finished.
+ */
+class TokenStream implements Iterator<Token> {
+    static final int DEFAULT_LOOKAHEAD = 4;
+
+    private final Scanner scanner;
+    private final Token[] buffer;
+    private int head = 0;
+    private int count = 0;
+    private boolean done = false;
+
+    TokenStream(Scanner scanner) {
+        this(scanner, DEFAULT_LOOKAHEAD);
+    }
+
+    TokenStream(Scanner scanner, int lookahead) {
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("Lookahead must be at least 1 token.");
+        }
+        this.scanner = scanner;
+        this.buffer = new Token[lookahead];
+    }
+
+    /** Returns the next token without consuming it. */
+    Token peek() {
+        return peek(0);
+    }
+
+    /** Returns the token {@code distance} places ahead without consuming anything. */
+    Token peek(int distance) {
+        if (distance < 0) {
+            throw new IllegalArgumentException("Cannot peek behind the stream.");
+        }
+        if (distance >= buffer.length) {
+            throw new IllegalArgumentException("Lookahead is limited to " + buffer.length + " tokens.");
+        }
+        while (count <= distance) {
+            buffer[(head + count) % buffer.length] = scanner.nextToken();
+            count++;
+        }
+        return buffer[(head + distance) % buffer.length];
+    }
+
+    /** False once the EOF token has been handed out. */
+    @Override
+    public boolean hasNext() {
+        return !done;
+    }
+
+    @Override
+    public Token next() {
+        if (done) throw new NoSuchElementException();
+
+        Token token = peek();
+        buffer[head] = null;
+        head = (head + 1) % buffer.length;
+        count--;
+        if (token.type == TokenType.EOF) done = true;
+        return token;
+    }
+}